@@ -0,0 +1,135 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code Batch} class is a library used for performing many partially
+ * matched or multiparental sorting crossovers from a single job file. Jobs
+ * use the same layout as the input of the single crossover modes and are
+ * separated by blank lines. Jobs are read in chunks into reused buffers,
+ * crossed in parallel, and printed one result per line in job order. A line
+ * with the wrong number of cells stops the batch.
+ */
+class Batch {
+  // Row length.
+  private static final int DIM = 9;
+  // Number of jobs per chunk.
+  private static final int CHUNK = 4096;
+  // Number of lines of partially matched crossover job.
+  private static final int PMX_LINES = 3;
+
+  /**
+   * Perform crossover jobs from file and print results.
+   *
+   * @param path job file path.
+   * @param mode {@code 0} for partially matched crossover, {@code 1} for
+   *             multiparental sorting crossover.
+   */
+  static void cross(String path, int mode) {
+    // Chunk buffers, reused for every chunk.
+    int[][][] jobs = new int[CHUNK][][];
+    int[] lines = new int[CHUNK];
+    int[][] results = new int[CHUNK][];
+    PrintWriter writer = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out)));
+    try (LineNumberReader reader = new LineNumberReader(
+            Files.newBufferedReader(Paths.get(path)))) {
+      int size;
+      int done = 0;
+      while ((size = readChunk(reader, path, done, mode, jobs, lines)) > 0) {
+        done += size;
+        IntStream.range(0, size).parallel().forEach(i ->
+                results[i] = cross(jobs[i], lines[i], mode));
+        for (int i = 0; i < size; i++) {
+          int[] result = results[i];
+          for (int j = 0; j < result.length; j++) {
+            writer.print(result[j]);
+            if (j < result.length - 1) {
+              writer.print(' ');
+            }
+          }
+          writer.println();
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    writer.flush();
+  }
+
+  /**
+   * Helper method that reads up to {@code CHUNK} jobs into buffers.
+   *
+   * @param reader job file reader.
+   * @param path job file path, for error messages.
+   * @param done number of jobs read before chunk, for error messages.
+   * @param mode crossover mode.
+   * @param jobs buffers for job lines.
+   * @param lines buffer for number of lines of every job.
+   * @return number of jobs read.
+   * @throws IOException if file cannot be read or line has wrong number of
+   *                     cells.
+   */
+  private static int readChunk(LineNumberReader reader, String path,
+                               int done, int mode, int[][][] jobs,
+                               int[] lines) throws IOException {
+    Arrays.fill(lines, 0);
+    int size = 0;
+    String line;
+    while (size < CHUNK && (line = reader.readLine()) != null) {
+      // Blank line ends job.
+      if (line.trim().isEmpty()) {
+        if (lines[size] > 0) {
+          size++;
+        }
+        continue;
+      }
+      if (jobs[size] == null) {
+        jobs[size] = new int[PMX_LINES + 1][DIM];
+      }
+      int[][] job = jobs[size];
+      if (lines[size] == job.length) {
+        job = Arrays.copyOf(job, job.length + 1);
+        job[job.length - 1] = new int[DIM];
+        jobs[size] = job;
+      }
+      // Bounds line of partially matched crossover holds two values.
+      int len = mode == 0 && lines[size] == 0 ? 2 : DIM;
+      // Buffers are reused, so every cell of row has to be read.
+      if (SudokuIO.cellCount(line) != len) {
+        throw new IOException(path + ":" + reader.getLineNumber() + ": job "
+                + (done + size + 1) + ": expected " + len + " cells");
+      }
+      SudokuIO.readRow(line, job[lines[size]++], len);
+      if (mode == 0 && lines[size] == PMX_LINES) {
+        size++;
+      }
+    }
+    // Last job may end without blank line.
+    if (size < CHUNK && lines[size] > 0) {
+      size++;
+    }
+    return size;
+  }
+
+  /**
+   * Helper method that performs single crossover job.
+   *
+   * @param job job lines.
+   * @param lines number of job lines.
+   * @param mode crossover mode.
+   * @return row produced by crossover.
+   */
+  private static int[] cross(int[][] job, int lines, int mode) {
+    if (mode == 0) {
+      return PMX.cross(job[1], job[2], job[0][0] - 1, job[0][1] - 1);
+    }
+    return MPSX.cross(job[0], Arrays.copyOfRange(job, 1, lines));
+  }
+}
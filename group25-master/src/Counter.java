@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code Counter} class is a library with a single public method to
+ * count the solutions of Sudoku puzzles up to a limit. Search starts from the
+ * prefiltered domains and the top of the search tree is split across a
+ * fork-join pool.
+ */
+public class Counter {
+  // Depth to which search tree is split into tasks.
+  private static final int SPLIT_DEPTH = 4;
+  // Search of every worker thread, reused by all its tasks.
+  private static final ThreadLocal<Search> SEARCH =
+          ThreadLocal.withInitial(() -> new Search(null));
+
+  /**
+   * The {@code CountTask} class serves as fork-join task counting solutions
+   * below partially filled puzzle.
+   */
+  private static class CountTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    int[] puzzle;
+    int[] domains;
+    int depth;
+    int limit;
+    AtomicLong found;
+
+    /**
+     * Constructor that takes partially filled puzzle and shared search state.
+     *
+     * @param puzzle puzzle cells, with {@code 0} for empty cells.
+     * @param domains bit mask of allowed values for every cell.
+     * @param depth depth in search tree.
+     * @param limit maximum number of solutions to count.
+     * @param found shared solution count.
+     */
+    CountTask(int[] puzzle, int[] domains, int depth, int limit,
+              AtomicLong found) {
+      this.puzzle = puzzle;
+      this.domains = domains;
+      this.depth = depth;
+      this.limit = limit;
+      this.found = found;
+    }
+
+    /**
+     * Split on empty cell with fewest candidates, or search sequentially
+     * once deep enough.
+     */
+    @Override
+    protected void compute() {
+      // Early exit once limit is reached.
+      if (found.get() >= limit) {
+        return;
+      }
+      Search search = SEARCH.get();
+      search.found = found;
+      if (depth >= SPLIT_DEPTH) {
+        search.count(puzzle, domains, limit);
+        return;
+      }
+      if (!search.load(puzzle, domains)) {
+        return;
+      }
+      int cell = search.choose();
+      if (cell == Search.CELLS) {
+        found.incrementAndGet();
+        return;
+      }
+      // One task per candidate value, as search is reused by subtasks.
+      List<CountTask> tasks = new ArrayList<>();
+      for (int val : Search.values(search.candidates(cell))) {
+        int[] child = puzzle.clone();
+        child[cell] = val;
+        tasks.add(new CountTask(child, domains, depth + 1, limit, found));
+      }
+      invokeAll(tasks);
+    }
+  }
+
+  /**
+   * Count solutions of Sudoku puzzle up to limit.
+   *
+   * @param sudoku Sudoku representation.
+   * @param limit maximum number of solutions to count.
+   * @return number of solutions, at most {@code limit}.
+   */
+  public static int count(int[][] sudoku, int limit) {
+    int[] domains = Search.masks(Prefilt.filter(sudoku));
+    AtomicLong found = new AtomicLong();
+    ForkJoinPool.commonPool().invoke(new CountTask(Search.toCells(sudoku),
+            domains, 0, limit, found));
+    return (int) Math.min(found.get(), limit);
+  }
+}
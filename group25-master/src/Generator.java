@@ -0,0 +1,134 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code Generator} class is a library used for generating Sudoku puzzles
+ * with a unique solution and rating their difficulty. Every puzzle is
+ * generated from its own seed, so corpora are reproducible even though
+ * puzzles are generated in parallel.
+ */
+class Generator {
+  // Row and column length.
+  private static final int DIM = 9;
+  // Number of cells.
+  private static final int CELLS = DIM * DIM;
+  // Grids to try before settling for more clues than requested.
+  private static final int MAX_TRIES = 50;
+  // Search effort limits of ratings.
+  private static final long MEDIUM_NODES = 10;
+  private static final long HARD_NODES = 100;
+  // Seed mixing constant.
+  private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+  /**
+   * Generate puzzles and print them one per line, followed by their number
+   * of clues, rating, and search effort. Puzzles with more clues than
+   * requested are also reported on standard error.
+   *
+   * @param num number of puzzles.
+   * @param clues target number of clues.
+   * @param seed seed of corpus.
+   */
+  static void generate(int num, int clues, long seed) {
+    IntStream.range(0, num).parallel()
+            .mapToObj(i -> describe(generate(clues, seed + i * GOLDEN), i,
+                    clues))
+            .forEachOrdered(System.out::println);
+  }
+
+  /**
+   * Generate puzzle with a unique solution, removing clues until target
+   * number of clues is reached. Puzzles that get stuck above target are
+   * retried from a new solved grid, keeping the one with the fewest clues.
+   *
+   * @param clues target number of clues.
+   * @param seed seed of puzzle.
+   * @return puzzle cells, with {@code 0} for empty cells.
+   */
+  static int[] generate(int clues, long seed) {
+    Random random = new Random(seed);
+    Search search = new Search(random);
+    Search check = new Search(null);
+    int[] all = new int[CELLS];
+    Arrays.fill(all, Search.ALL);
+    int[] order = new int[CELLS];
+    for (int i = 0; i < CELLS; i++) {
+      order[i] = i;
+    }
+
+    int[] best = null;
+    int bestClues = CELLS + 1;
+    for (int tries = 0; tries < MAX_TRIES && bestClues > clues; tries++) {
+      // Fill random solved grid.
+      search.count(new int[CELLS], all, 1);
+      int[] puzzle = search.solution;
+      // Remove clues in random order while solution stays unique.
+      Search.shuffle(order, random);
+      int left = CELLS;
+      for (int i = 0; i < CELLS && left > clues; i++) {
+        int val = puzzle[order[i]];
+        puzzle[order[i]] = 0;
+        if (check.count(puzzle, all, 2) == 1) {
+          left--;
+        } else {
+          puzzle[order[i]] = val;
+        }
+      }
+      if (left < bestClues) {
+        best = puzzle;
+        bestClues = left;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Rate puzzle difficulty. Rating {@code 1} means prefiltering alone solves
+   * the puzzle, higher ratings mean more search effort is needed from the
+   * prefiltered domains.
+   *
+   * @param puzzle puzzle cells, with {@code 0} for empty cells.
+   * @return rating followed by search effort in nodes.
+   */
+  static long[] rate(int[] puzzle) {
+    int[] domains = Search.masks(Prefilt.filter(Search.toGrid(puzzle)));
+    boolean solved = true;
+    for (int domain : domains) {
+      solved &= Integer.bitCount(domain) == 1;
+    }
+    if (solved) {
+      return new long[] {1, 0};
+    }
+    Search search = new Search(null);
+    search.count(puzzle, domains, 2);
+    long rating = search.nodes <= MEDIUM_NODES ? 2
+            : search.nodes <= HARD_NODES ? 3 : 4;
+    return new long[] {rating, search.nodes};
+  }
+
+  /**
+   * Helper method that formats puzzle with its number of clues, rating,
+   * and search effort, warning if it has more clues than requested.
+   *
+   * @param puzzle puzzle cells, with {@code 0} for empty cells.
+   * @param index puzzle index in corpus.
+   * @param clues target number of clues.
+   * @return line describing puzzle.
+   */
+  private static String describe(int[] puzzle, int index, int clues) {
+    int left = 0;
+    for (int val : puzzle) {
+      if (val != 0) {
+        left++;
+      }
+    }
+    if (left > clues) {
+      System.err.println("Puzzle " + index + " has " + left
+              + " clues, target " + clues + " not reached");
+    }
+    long[] rating = rate(puzzle);
+    return SudokuIO.formatLine(Search.toGrid(puzzle)) + " " + left + " "
+            + rating[0] + " " + rating[1];
+  }
+}
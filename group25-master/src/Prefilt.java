@@ -5,15 +5,177 @@ import java.util.List;
  * The {@code Prefilt} class is a library used for prefiltering in Sudoku
  * puzzles. Prefiltering helps to speed up the generation of solutions by
  * reducing the number of possible values for every empty cell to just the
- * ones allowed by constraints.
+ * ones allowed by constraints. The {@code Engine} class does the filtering
+ * incrementally, so searches can try assignments and undo them.
  */
 public class Prefilt {
   // Row and column length.
   private static final int DIM = 9;
-  // Lists of cell domains.
-  private static List<Integer>[][] domainListsGrid;
-  // List of cell checks.
-  private static List<Integer> checksList;
+  // Number of cells.
+  private static final int CELLS = DIM * DIM;
+  // Bit mask of all cell values.
+  private static final int ALL = 0x3FE;
+  // Cells sharing row, column, or sector with every cell.
+  private static final int[][] PEERS = new int[CELLS][20];
+
+  static {
+    for (int cell = 0; cell < CELLS; cell++) {
+      int row = cell / DIM;
+      int col = cell % DIM;
+      int count = 0;
+      for (int other = 0; other < CELLS; other++) {
+        int otherRow = other / DIM;
+        int otherCol = other % DIM;
+        if (other != cell && (otherRow == row || otherCol == col
+                || (otherRow / 3 == row / 3 && otherCol / 3 == col / 3))) {
+          PEERS[cell][count++] = other;
+        }
+      }
+    }
+  }
+
+  /**
+   * The {@code Engine} class serves as incremental propagation engine over
+   * bit masks of cell domains. Every domain change is recorded on a trail,
+   * so assignments can be undone back to any checkpoint. All arrays are
+   * allocated once.
+   */
+  public static class Engine {
+    // Bit mask of allowed values for every cell.
+    int[] domains = new int[CELLS];
+    // Pairs of cell and previous domain. Domains only shrink between
+    // checkpoints, so every cell changes at most DIM times.
+    int[] trail = new int[2 * CELLS * DIM];
+    int trailSize;
+    // Cells whose single value still has to be removed from peers.
+    int[] queue = new int[CELLS];
+    int queueSize;
+
+    /**
+     * Constructor that takes Sudoku representation and filters domains.
+     *
+     * @param sudoku Sudoku representation.
+     */
+    public Engine(int[][] sudoku) {
+      int[] all = new int[CELLS];
+      for (int i = 0; i < CELLS; i++) {
+        int val = sudoku[i / DIM][i % DIM];
+        all[i] = val == 0 ? ALL : 1 << val;
+      }
+      load(all);
+    }
+
+    /**
+     * Replace domains, filter them, and clear trail.
+     *
+     * @param masks bit mask of allowed values for every cell.
+     * @return whether no domain is empty.
+     */
+    public boolean load(int[] masks) {
+      System.arraycopy(masks, 0, domains, 0, CELLS);
+      queueSize = 0;
+      for (int i = 0; i < CELLS; i++) {
+        if (Integer.bitCount(domains[i]) == 1) {
+          queue[queueSize++] = i;
+        }
+      }
+      boolean consistent = propagate();
+      for (int domain : domains) {
+        consistent &= domain != 0;
+      }
+      trailSize = 0;
+      return consistent;
+    }
+
+    /**
+     * Get bit mask of allowed values for cell.
+     *
+     * @param cell cell index.
+     * @return bit mask of values.
+     */
+    public int domain(int cell) {
+      return domains[cell];
+    }
+
+    /**
+     * Get checkpoint to undo to.
+     *
+     * @return current trail size.
+     */
+    public int checkpoint() {
+      return trailSize;
+    }
+
+    /**
+     * Restore domains as they were at checkpoint.
+     *
+     * @param checkpoint trail size returned by {@code checkpoint}.
+     */
+    public void undo(int checkpoint) {
+      while (trailSize > checkpoint) {
+        trailSize -= 2;
+        domains[trail[trailSize]] = trail[trailSize + 1];
+      }
+    }
+
+    /**
+     * Assign value to cell and filter domains of other cells.
+     *
+     * @param cell cell index.
+     * @param val value to assign.
+     * @return whether no domain became empty.
+     */
+    public boolean assign(int cell, int val) {
+      int bit = 1 << val;
+      if ((domains[cell] & bit) == 0) {
+        return false;
+      }
+      if (domains[cell] != bit) {
+        set(cell, bit);
+      }
+      return propagate();
+    }
+
+    /**
+     * Helper method that changes domain, recording previous one on trail.
+     *
+     * @param cell cell index.
+     * @param mask new domain.
+     */
+    private void set(int cell, int mask) {
+      trail[trailSize++] = cell;
+      trail[trailSize++] = domains[cell];
+      domains[cell] = mask;
+      if (Integer.bitCount(mask) == 1) {
+        queue[queueSize++] = cell;
+      }
+    }
+
+    /**
+     * Helper method that removes single values of queued cells from their
+     * peers, until no more cells are queued.
+     *
+     * @return whether no domain became empty.
+     */
+    private boolean propagate() {
+      boolean consistent = true;
+      while (queueSize > 0) {
+        int cell = queue[--queueSize];
+        int mask = domains[cell];
+        // Cell may have been emptied since queued.
+        if (Integer.bitCount(mask) != 1) {
+          continue;
+        }
+        for (int peer : PEERS[cell]) {
+          if ((domains[peer] & mask) != 0) {
+            set(peer, domains[peer] & ~mask);
+            consistent &= domains[peer] != 0;
+          }
+        }
+      }
+      return consistent;
+    }
+  }
 
   /**
    * Filter domain for every empty cell.
@@ -22,35 +184,35 @@ public class Prefilt {
    * @return 2D array of cell domain lists.
    */
   public static List<Integer>[][] filter(int[][] sudoku) {
+    Engine engine = new Engine(sudoku);
     // Initialise and populate domainListsGrid.
-    domainListsGrid = (ArrayList<Integer>[][]) new ArrayList[DIM][DIM];
+    List<Integer>[][] domainListsGrid = newDomainListsGrid();
     for (int i = 0; i < DIM; i++) {
       for (int j = 0; j < DIM; j++) {
-        domainListsGrid[i][j] = new ArrayList<>(DIM);
-        List<Integer> domain = domainListsGrid[i][j];
-        if (sudoku[i][j] == 0) {
-          for (int k = 1; k <= DIM; k++) {
-            domain.add(k);
+        int mask = engine.domain(i * DIM + j);
+        for (int k = 1; k <= DIM; k++) {
+          if ((mask & (1 << k)) != 0) {
+            domainListsGrid[i][j].add(k);
           }
-        } else {
-          domain.add(sudoku[i][j]);
         }
       }
     }
+    return domainListsGrid;
+  }
 
-    // Filter cell domains.
-    checksList = new ArrayList<>(DIM * DIM);
-    // Do checks once for all cells.
+  /**
+   * Create 2D array of empty cell domain lists.
+   *
+   * @return 2D array of cell domain lists.
+   */
+  static List<Integer>[][] newDomainListsGrid() {
+    List<Integer>[][] domainListsGrid =
+            (ArrayList<Integer>[][]) new ArrayList[DIM][DIM];
     for (int i = 0; i < DIM; i++) {
       for (int j = 0; j < DIM; j++) {
-        checkDomains(i, j);
+        domainListsGrid[i][j] = new ArrayList<>(DIM);
       }
     }
-    // Then do checks only for cells in list.
-    while (!checksList.isEmpty()) {
-      int check = checksList.remove(checksList.size() - 1);
-      checkDomains(check / 10, check % 10);
-    }
     return domainListsGrid;
   }
 
@@ -61,16 +223,16 @@ public class Prefilt {
    * @return array of cell domains.
    */
   public static int[][] domainsList(int[][] sudoku) {
-    filter(sudoku);
-    return makeDomainsList();
+    return makeDomainsList(filter(sudoku));
   }
 
   /**
    * Helper method that converts 2D array of domain lists to array of domains.
    *
+   * @param domainListsGrid 2D array of cell domain lists.
    * @return array of cell domains.
    */
-  private static int[][] makeDomainsList() {
+  private static int[][] makeDomainsList(List<Integer>[][] domainListsGrid) {
     // Create and populate domainsList.
     int[][] domainsList = new int[DIM * DIM][];
     int index = 0;
@@ -86,53 +248,4 @@ public class Prefilt {
     }
     return domainsList;
   }
-
-  /**
-   * Helper method to reduce domains.
-   *
-   * @param row row index.
-   * @param col column index.
-   */
-  private static void checkDomains(int row, int col) {
-    // Do checks if cell has fixed value.
-    List<Integer> domain = domainListsGrid[row][col];
-    if (domain.size() == 1) {
-      // Get cell value.
-      Integer val = domain.get(0);
-      // Row and Column check.
-      for (int i = 0; i < DIM; i++) {
-        // Row check.
-        domain = domainListsGrid[row][i];
-        if (i != col && domain.contains(val)) {
-          domain.remove(val);
-          if (domain.size() == 1) {
-            checksList.add(row * 10 + i);
-          }
-        }
-        // Column check.
-        domain = domainListsGrid[i][col];
-        if (i != row && domain.contains(val)) {
-          domain.remove(val);
-          if (domain.size() == 1) {
-            checksList.add(i * 10 + col);
-          }
-        }
-      }
-      // Sector check.
-      int secRow = (row / 3) * 3;
-      int secCol = (col / 3) * 3;
-      for (int i = secRow; i < secRow + 3; i++) {
-        for (int j = secCol; j < secCol + 3; j++) {
-          domain = domainListsGrid[i][j];
-          if (i != row && j != col
-                  && domain.contains(val)) {
-            domain.remove(val);
-            if (domain.size() == 1) {
-              checksList.add(i * 10 + j);
-            }
-          }
-        }
-      }
-    }
-  }
 }
@@ -0,0 +1,263 @@
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code Search} class serves as exact backtracking search over a Sudoku
+ * grid. Every assignment is propagated by a {@code Prefilt.Engine} and undone
+ * through its trail on backtracking. Counts solutions up to a limit and the
+ * number of nodes visited.
+ */
+class Search {
+  // Row and column length.
+  private static final int DIM = 9;
+  // Number of cells.
+  static final int CELLS = DIM * DIM;
+  // Bit mask of all cell values.
+  static final int ALL = 0x3FE;
+  Prefilt.Engine engine = new Prefilt.Engine(new int[DIM][DIM]);
+  // Candidate values of every search depth.
+  int[][] vals = new int[CELLS + 1][DIM];
+  int[] solution;
+  Random random;
+  AtomicLong found;
+  int limit;
+  int count;
+  long nodes;
+
+  /**
+   * Constructor that takes random number generator for value order.
+   *
+   * @param random random number generator or {@code null} for ascending
+   *               value order.
+   */
+  Search(Random random) {
+    this(random, null);
+  }
+
+  /**
+   * Constructor that takes random number generator for value order and
+   * solution count shared with other searches.
+   *
+   * @param random random number generator or {@code null} for ascending
+   *               value order.
+   * @param found shared solution count or {@code null}.
+   */
+  Search(Random random, AtomicLong found) {
+    this.random = random;
+    this.found = found;
+  }
+
+  /**
+   * Count solutions of puzzle up to limit.
+   *
+   * @param puzzle puzzle cells, with {@code 0} for empty cells.
+   * @param domains bit mask of allowed values for every cell.
+   * @param limit maximum number of solutions to count.
+   * @return number of solutions found.
+   */
+  int count(int[] puzzle, int[] domains, int limit) {
+    this.limit = limit;
+    count = 0;
+    nodes = 0;
+    solution = null;
+    if (load(puzzle, domains)) {
+      search(0);
+    }
+    return count;
+  }
+
+  /**
+   * Load domains and assign puzzle clues.
+   *
+   * @param puzzle puzzle cells, with {@code 0} for empty cells.
+   * @param domains bit mask of allowed values for every cell.
+   * @return whether clues are consistent.
+   */
+  boolean load(int[] puzzle, int[] domains) {
+    if (!engine.load(domains)) {
+      return false;
+    }
+    for (int i = 0; i < CELLS; i++) {
+      if (puzzle[i] != 0 && !engine.assign(i, puzzle[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Find undecided cell with fewest candidates.
+   *
+   * @return cell index, or {@code CELLS} if every cell is decided.
+   */
+  int choose() {
+    int best = CELLS;
+    int bestSize = DIM + 1;
+    for (int i = 0; i < CELLS && bestSize > 2; i++) {
+      int size = Integer.bitCount(engine.domain(i));
+      if (size > 1 && size < bestSize) {
+        best = i;
+        bestSize = size;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Get bit mask of values that can still be placed in cell.
+   *
+   * @param cell cell index.
+   * @return bit mask of values.
+   */
+  int candidates(int cell) {
+    return engine.domain(cell);
+  }
+
+  /**
+   * Determine whether enough solutions have been found.
+   *
+   * @return whether done.
+   */
+  private boolean done() {
+    return count >= limit || (found != null && found.get() >= limit);
+  }
+
+  /**
+   * Decide cells in order of fewest candidates, using backtracking.
+   *
+   * @param depth number of cells decided by search so far.
+   */
+  private void search(int depth) {
+    nodes++;
+    int cell = choose();
+    // Every cell decided.
+    if (cell == CELLS) {
+      if (count++ == 0) {
+        solution = new int[CELLS];
+        for (int i = 0; i < CELLS; i++) {
+          solution[i] = Integer.numberOfTrailingZeros(engine.domain(i));
+        }
+      }
+      if (found != null) {
+        found.incrementAndGet();
+      }
+      return;
+    }
+    // Try values in random or ascending order.
+    int[] depthVals = vals[depth];
+    int size = values(candidates(cell), depthVals);
+    if (random != null) {
+      shuffle(depthVals, size, random);
+    }
+    int checkpoint = engine.checkpoint();
+    for (int i = 0; i < size; i++) {
+      if (engine.assign(cell, depthVals[i])) {
+        search(depth + 1);
+      }
+      engine.undo(checkpoint);
+      if (done()) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Convert bit mask to array of values in ascending order.
+   *
+   * @param mask bit mask of values.
+   * @return array of values.
+   */
+  static int[] values(int mask) {
+    int[] vals = new int[Integer.bitCount(mask)];
+    values(mask, vals);
+    return vals;
+  }
+
+  /**
+   * Write values of bit mask into array in ascending order.
+   *
+   * @param mask bit mask of values.
+   * @param vals array to write to.
+   * @return number of values.
+   */
+  static int values(int mask, int[] vals) {
+    int size = 0;
+    for (int val = 1; val <= DIM; val++) {
+      if ((mask & (1 << val)) != 0) {
+        vals[size++] = val;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Convert 2D array of domain lists to bit mask of every cell domain.
+   *
+   * @param domainListsGrid 2D array of cell domain lists.
+   * @return bit mask of allowed values for every cell.
+   */
+  static int[] masks(List<Integer>[][] domainListsGrid) {
+    int[] domains = new int[CELLS];
+    for (int i = 0; i < CELLS; i++) {
+      for (int val : domainListsGrid[i / DIM][i % DIM]) {
+        domains[i] |= 1 << val;
+      }
+    }
+    return domains;
+  }
+
+  /**
+   * Convert Sudoku representation to puzzle cells.
+   *
+   * @param sudoku Sudoku representation.
+   * @return puzzle cells.
+   */
+  static int[] toCells(int[][] sudoku) {
+    int[] puzzle = new int[CELLS];
+    for (int i = 0; i < DIM; i++) {
+      System.arraycopy(sudoku[i], 0, puzzle, i * DIM, DIM);
+    }
+    return puzzle;
+  }
+
+  /**
+   * Convert puzzle cells to Sudoku representation.
+   *
+   * @param puzzle puzzle cells.
+   * @return Sudoku representation.
+   */
+  static int[][] toGrid(int[] puzzle) {
+    int[][] grid = new int[DIM][DIM];
+    for (int i = 0; i < DIM; i++) {
+      System.arraycopy(puzzle, i * DIM, grid[i], 0, DIM);
+    }
+    return grid;
+  }
+
+  /**
+   * Shuffle array in place.
+   *
+   * @param array array to shuffle.
+   * @param random random number generator.
+   */
+  static void shuffle(int[] array, Random random) {
+    shuffle(array, array.length, random);
+  }
+
+  /**
+   * Shuffle first elements of array in place.
+   *
+   * @param array array to shuffle.
+   * @param size number of elements to shuffle.
+   * @param random random number generator.
+   */
+  static void shuffle(int[] array, int size, Random random) {
+    for (int i = size - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int temp = array[i];
+      array[i] = array[j];
+      array[j] = temp;
+    }
+  }
+}
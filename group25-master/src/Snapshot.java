@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The {@code Snapshot} class manages a snapshot file of solver state. State
+ * is copied into one of two buffers while the other may still be written,
+ * and buffers are written by a background thread to a temporary file that
+ * then replaces the snapshot file, so the search does not wait for disk and
+ * the file always holds a complete snapshot.
+ */
+class Snapshot {
+  // File signature, "SDKS".
+  private static final int MAGIC = 0x53444B53;
+  // Format version.
+  private static final short VERSION = 2;
+  // Header length in bytes: signature, version, and state length.
+  private static final int HEADER = 10;
+  // Snapshot file path.
+  private Path path;
+  // Double buffer.
+  private ByteBuffer[] buffers = new ByteBuffer[2];
+  private int next;
+  // Writer thread and write of every buffer.
+  private ExecutorService writer;
+  private Future<?>[] pending = new Future<?>[2];
+
+  /**
+   * Constructor that takes snapshot file path.
+   *
+   * @param path snapshot file path.
+   */
+  Snapshot(String path) {
+    this.path = Paths.get(path);
+    writer = Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, "snapshot-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Get free buffer to copy state into, with header already written. The
+   * buffer is free while the other one is still being written.
+   *
+   * @param size number of state bytes.
+   * @return buffer, or {@code null} if both buffers are busy.
+   */
+  ByteBuffer begin(int size) {
+    if (pending[next] != null && !pending[next].isDone()) {
+      return null;
+    }
+    ByteBuffer buffer = buffers[next];
+    if (buffer == null || buffer.capacity() < size + HEADER) {
+      buffer = ByteBuffer.allocate(size + HEADER);
+      buffers[next] = buffer;
+    }
+    buffer.clear();
+    // State length is filled in by commit.
+    buffer.putInt(MAGIC).putShort(VERSION).putInt(0);
+    return buffer;
+  }
+
+  /**
+   * Write buffer returned by {@code begin} in background.
+   */
+  void commit() {
+    ByteBuffer buffer = buffers[next];
+    buffer.putInt(HEADER - Integer.BYTES, buffer.position() - HEADER);
+    buffer.flip();
+    // Writes run in order on single writer thread.
+    pending[next] = writer.submit(() -> {
+      Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+      try (FileChannel channel = FileChannel.open(temp,
+              StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        channel.force(false);
+      } catch (IOException e) {
+        e.printStackTrace();
+        return;
+      }
+      try {
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    });
+    next ^= 1;
+  }
+
+  /**
+   * Wait for writes in progress.
+   */
+  void flush() {
+    for (Future<?> write : pending) {
+      try {
+        if (write != null) {
+          write.get();
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Wait for writes in progress and stop writer thread.
+   */
+  void close() {
+    flush();
+    writer.shutdown();
+  }
+
+  /**
+   * Delete snapshot file, once no longer needed.
+   */
+  void delete() {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Read snapshot file.
+   *
+   * @param path snapshot file path.
+   * @return buffer positioned after header, or {@code null} if there is no
+   *         snapshot, or it has another version or is truncated.
+   */
+  static ByteBuffer read(String path) {
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(
+              Paths.get(path)));
+      if (buffer.remaining() < HEADER || buffer.getInt() != MAGIC
+              || buffer.getShort() != VERSION
+              || buffer.getInt() != buffer.remaining()) {
+        System.err.println("Ignoring invalid snapshot " + path);
+        return null;
+      }
+      return buffer;
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+}
@@ -1,7 +1,14 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 
 /**
  * The {@code Solver} class is a library that contains one public method,
@@ -16,12 +23,16 @@ public class Solver {
   private static final int SOL_NUM = 1000;
   // Time limit in seconds.
   private static final double MAX_TIME = 13.5;
+  // Time between snapshots in seconds.
+  private static final double SNAPSHOT_TIME = 2.0;
   // Probabilities.
   private static final double PROB_PMX_MULTI = 0.9208;
   private static final double PROB_MUTATE = 0.5169;
   private static final double PROB_A = 0.9781;
   // Lists of cell domains.
   private static List<Integer>[][] domainListsGrid;
+  // Bit masks of cell domains.
+  private static int[] domainMasks;
   // List to order cells according to domain size.
   private static List<SizeIndex>[] sizeIndexLists;
   // List of solutions.
@@ -30,6 +41,36 @@ public class Solver {
   private static Cost cost = new Cost();
   // Previous best solution.
   private static Solution lastBest;
+  // Whether to perform geometric operators in parallel.
+  private static boolean parallel;
+  // Random number generator, reseeded at every snapshot.
+  private static Random random;
+  // Solving time in milliseconds, including runs resumed from.
+  private static long totalTime;
+  // Zobrist keys of every value in every cell.
+  private static final long[][] ZOBRIST = new long[DIM * DIM][BIG_DIM];
+  // Hash set of solution grids, with slots of current generation stamped.
+  private static final int HASH_SIZE = 2048;
+  private static long[] hashes = new long[HASH_SIZE];
+  private static int[] stamps = new int[HASH_SIZE];
+  private static int generation;
+  // Duplicate solutions replaced and solutions checked.
+  private static long duplicates;
+  private static long checked;
+  // Mutation swaps and crossover repairs accepted and rejected.
+  private static LongAdder swapsAccepted = new LongAdder();
+  private static LongAdder swapsRejected = new LongAdder();
+  private static LongAdder repairsAccepted = new LongAdder();
+  private static LongAdder repairsRejected = new LongAdder();
+
+  static {
+    Random keys = new Random(DIM);
+    for (long[] cellKeys : ZOBRIST) {
+      for (int i = 0; i < BIG_DIM; i++) {
+        cellKeys[i] = keys.nextLong();
+      }
+    }
+  }
 
   /**
    * The {@code SizeIndex} class serves as container for domain size and
@@ -75,6 +116,7 @@ public class Solver {
   private static class Solution {
     int[][] grid;
     int cost;
+    long hash;
     boolean processed;
 
     /**
@@ -90,9 +132,17 @@ public class Solver {
 
     /**
      * Determine cost of solution by counting all occurrences of values
-     * appearing more than once per column or sector.
+     * appearing more than once per column or sector, and update hash.
      */
     private void getCost() {
+      // Zobrist hash of grid.
+      long hash = 0;
+      for (int i = 0; i < DIM; i++) {
+        for (int j = 0; j < DIM; j++) {
+          hash ^= ZOBRIST[i * DIM + j][grid[i][j]];
+        }
+      }
+      this.hash = hash;
       int cost = 0;
       boolean[] in;
       // Column check.
@@ -149,23 +199,70 @@ public class Solver {
    * @return Sudoku solution or {@code null}.
    */
   public static int[][] solve(int[][] sudoku) {
+    return solve(sudoku, false);
+  }
+
+  /**
+   * Solve Sudoku puzzles using prefiltered cuckoo search algorithm with
+   * geometric operators, optionally performing the operators of every
+   * generation in parallel.
+   *
+   * @param sudoku Sudoku representation.
+   * @param parallel whether to perform geometric operators in parallel.
+   * @return Sudoku solution or {@code null}.
+   */
+  public static int[][] solve(int[][] sudoku, boolean parallel) {
+    return solve(sudoku, parallel, null);
+  }
+
+  /**
+   * Solve Sudoku puzzles using prefiltered cuckoo search algorithm with
+   * geometric operators, resuming from snapshot file of same puzzle if
+   * there is one and writing snapshots to it periodically and on timeout.
+   * Snapshot file is deleted once puzzle is solved.
+   * Random number generator state is only restored for sequential solving.
+   *
+   * @param sudoku Sudoku representation.
+   * @param parallel whether to perform geometric operators in parallel.
+   * @param path snapshot file path or {@code null}.
+   * @return Sudoku solution or {@code null}.
+   */
+  public static int[][] solve(int[][] sudoku, boolean parallel,
+                              String path) {
+    Solver.parallel = parallel;
     // Take start time.
     long start = System.currentTimeMillis();
+    random = new Random();
+    duplicates = 0;
+    checked = 0;
+    swapsAccepted.reset();
+    swapsRejected.reset();
+    repairsAccepted.reset();
+    repairsRejected.reset();
+    int[][] puzzle = copyOf(sudoku);
+    Snapshot snapshot = path == null ? null : new Snapshot(path);
+    ByteBuffer saved = path == null ? null : Snapshot.read(path);
+    long elapsed = saved == null ? -1 : restore(saved, sudoku);
 
-    // Initialise domainListsGrid.
-    domainListsGrid = Prefilt.filter(sudoku);
+    if (elapsed < 0) {
+      // Initialise domainListsGrid.
+      domainListsGrid = Prefilt.filter(sudoku);
 
-    // Apply naked singles.
-    for (int i = 0; i < DIM; i++) {
-      for (int j = 0; j < DIM; j++) {
-        List<Integer> domain = domainListsGrid[i][j];
-        if (domain.size() == 1) {
-          Integer temp = domain.get(0);
-          sudoku[i][j] = temp;
+      // Apply naked singles.
+      for (int i = 0; i < DIM; i++) {
+        for (int j = 0; j < DIM; j++) {
+          List<Integer> domain = domainListsGrid[i][j];
+          if (domain.size() == 1) {
+            Integer temp = domain.get(0);
+            sudoku[i][j] = temp;
+          }
         }
       }
     }
 
+    // Initialise domainMasks.
+    domainMasks = Search.masks(domainListsGrid);
+
     // Initialise and populate sizeIndexLists.
     sizeIndexLists = (ArrayList<SizeIndex>[]) new ArrayList[DIM];
     Size size = new Size();
@@ -182,35 +279,202 @@ public class Solver {
       sizeIndexLists[i].sort(size);
     }
 
-    // Initialise solutionsList.
-    solutionsList = new ArrayList<>(SOL_NUM);
-    // Generate initial solutions.
-    generateSolutions(sudoku);
-    lastBest = copyOf(0);
+    if (elapsed < 0) {
+      elapsed = 0;
+      // Initialise solutionsList.
+      solutionsList = new ArrayList<>(SOL_NUM);
+      // Generate initial solutions.
+      generateSolutions(sudoku);
+      lastBest = copyOf(0);
+    }
 
     // Solve.
+    long lastSave = start;
     while ((System.currentTimeMillis() - start) / 1000.0 < MAX_TIME) {
       if (solutionsList.get(0).cost == 0) {
+        totalTime = elapsed + System.currentTimeMillis() - start;
+        if (snapshot != null) {
+          snapshot.close();
+          snapshot.delete();
+        }
         return solutionsList.get(0).grid;
       }
+      // Save state between generations.
+      long now = System.currentTimeMillis();
+      if (snapshot != null && (now - lastSave) / 1000.0 >= SNAPSHOT_TIME
+              && save(snapshot, puzzle, sudoku, elapsed + now - start)) {
+        lastSave = now;
+      }
       // Choose two solutions.
       int index1 = randomNum(SOL_NUM);
       int index2;
       do {
         index2 = randomNum(SOL_NUM);
       } while (index2 == index1);
-      geoOps();
+      if (parallel) {
+        geoOpsParallel();
+      } else {
+        geoOps();
+      }
       // Then compare cost of chosen solutions.
       if (solutionsList.get(index1).cost
               <= solutionsList.get(index2).cost) {
         solutionsList.add(index2, copyOf(index1));
       }
       abandonWorst();
+      removeDuplicates();
       generateSolutions(sudoku);
     }
+    totalTime = elapsed + System.currentTimeMillis() - start;
+    if (snapshot != null) {
+      // Wait for previous snapshots, then save final state.
+      snapshot.flush();
+      save(snapshot, puzzle, sudoku, totalTime);
+      snapshot.close();
+    }
     return null;
   }
 
+  /**
+   * Copy solver state into free snapshot buffer and write it in background.
+   * Random number generator is reseeded with stored seed, so a run resumed
+   * from this snapshot starts with the same random numbers the saving run
+   * went on with. As snapshots are taken at wall-clock times, the two runs
+   * drift apart after their next snapshots, so resumed search does not
+   * follow the path of an uninterrupted one.
+   *
+   * @param snapshot snapshot file.
+   * @param puzzle original Sudoku representation.
+   * @param sudoku Sudoku representation with naked singles applied.
+   * @param elapsed total solving time in milliseconds.
+   * @return whether state was saved.
+   */
+  private static boolean save(Snapshot snapshot, int[][] puzzle,
+                              int[][] sudoku, long elapsed) {
+    ByteBuffer buffer = snapshot.begin(2 * Long.BYTES + Integer.BYTES
+            + (SOL_NUM + 3) * DIM * DIM + DIM * DIM * BIG_DIM);
+    if (buffer == null) {
+      return false;
+    }
+    long seed = random.nextLong();
+    random.setSeed(seed);
+    buffer.putLong(elapsed).putLong(seed);
+    putGrid(buffer, puzzle);
+    putGrid(buffer, sudoku);
+    for (int i = 0; i < DIM; i++) {
+      for (int j = 0; j < DIM; j++) {
+        List<Integer> domain = domainListsGrid[i][j];
+        buffer.put((byte) domain.size());
+        for (int val : domain) {
+          buffer.put((byte) val);
+        }
+      }
+    }
+    buffer.putInt(solutionsList.size());
+    for (Solution solution : solutionsList) {
+      putGrid(buffer, solution.grid);
+    }
+    putGrid(buffer, lastBest.grid);
+    snapshot.commit();
+    return true;
+  }
+
+  /**
+   * Restore solver state from snapshot of same puzzle. Costs are recomputed
+   * from the restored grids. Solver state is only changed if the whole
+   * snapshot is valid.
+   *
+   * @param buffer snapshot positioned after header.
+   * @param sudoku Sudoku representation, updated with naked singles.
+   * @return total solving time in milliseconds so far, or {@code -1} if
+   *         snapshot is of a different puzzle or invalid.
+   */
+  private static long restore(ByteBuffer buffer, int[][] sudoku) {
+    try {
+      long elapsed = buffer.getLong();
+      long seed = buffer.getLong();
+      if (!Arrays.deepEquals(getGrid(buffer, 0), sudoku)) {
+        return -1;
+      }
+      int[][] filled = getGrid(buffer, 0);
+      List<Integer>[][] domains = Prefilt.newDomainListsGrid();
+      for (int i = 0; i < DIM; i++) {
+        for (int j = 0; j < DIM; j++) {
+          int size = buffer.get();
+          check(size >= 1 && size <= DIM);
+          for (int k = 0; k < size; k++) {
+            int val = buffer.get();
+            check(val >= 1 && val <= DIM);
+            domains[i][j].add(val);
+          }
+        }
+      }
+      check(elapsed >= 0 && buffer.getInt() == SOL_NUM);
+      List<Solution> solutions = new ArrayList<>(SOL_NUM);
+      for (int i = 0; i < SOL_NUM; i++) {
+        solutions.add(new Solution(getGrid(buffer, 1)));
+      }
+      Solution best = new Solution(getGrid(buffer, 1));
+      check(!buffer.hasRemaining());
+
+      // Whole snapshot is valid.
+      for (int i = 0; i < DIM; i++) {
+        System.arraycopy(filled[i], 0, sudoku[i], 0, DIM);
+      }
+      domainListsGrid = domains;
+      solutionsList = solutions;
+      lastBest = best;
+      random.setSeed(seed);
+      return elapsed;
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      System.err.println("Ignoring invalid snapshot");
+      return -1;
+    }
+  }
+
+  /**
+   * Helper method that checks condition on snapshot contents.
+   *
+   * @param condition condition that holds for valid snapshots.
+   */
+  private static void check(boolean condition) {
+    if (!condition) {
+      throw new IllegalArgumentException("Invalid snapshot");
+    }
+  }
+
+  /**
+   * Helper method that writes grid to buffer, one byte per cell.
+   *
+   * @param buffer buffer to write to.
+   * @param grid grid to write.
+   */
+  private static void putGrid(ByteBuffer buffer, int[][] grid) {
+    for (int[] row : grid) {
+      for (int val : row) {
+        buffer.put((byte) val);
+      }
+    }
+  }
+
+  /**
+   * Helper method that reads grid from buffer, one byte per cell.
+   *
+   * @param buffer buffer to read from.
+   * @param min smallest valid cell value.
+   * @return grid read.
+   */
+  private static int[][] getGrid(ByteBuffer buffer, int min) {
+    int[][] grid = new int[DIM][DIM];
+    for (int[] row : grid) {
+      for (int j = 0; j < DIM; j++) {
+        row[j] = buffer.get();
+        check(row[j] >= min && row[j] <= DIM);
+      }
+    }
+    return grid;
+  }
+
   /**
    * Generate potential solutions.
    *
@@ -226,7 +490,7 @@ public class Solver {
         for (int j = 0; j < DIM; j++) {
           List<Integer> domain = domainListsGrid[i][j];
           if (domain.size() > 1) {
-            Collections.shuffle(domain);
+            Collections.shuffle(domain, rng());
           }
         }
         // Copy fixed values.
@@ -296,15 +560,7 @@ public class Solver {
           // Mark solution as processed.
           solution.processed = true;
           // Perform geometric operators.
-          if (Math.random() < PROB_PMX_MULTI) {
-            pmxCross(solution.grid, solutionsList.get(0).grid);
-          } else {
-            mpsxCross(solution.grid, solutionsList.get(0).grid,
-                    lastBest.grid);
-          }
-          if (Math.random() < PROB_MUTATE) {
-            mutate(solution.grid);
-          }
+          evolve(solution.grid, solutionsList.get(0).grid, lastBest.grid);
           // Save best.
           lastBest = copyOf(0);
           // Update cost.
@@ -322,6 +578,184 @@ public class Solver {
     }
   }
 
+  /**
+   * Perform geometric operators on all potential solutions but the best in
+   * parallel chunks, against snapshots of current and previous best
+   * solutions. Costs are updated in parallel and the list is sorted once
+   * afterwards.
+   */
+  private static void geoOpsParallel() {
+    // Snapshot best solutions.
+    Solution best = copyOf(0);
+    int[][] gridLastBest = lastBest.grid;
+    IntStream.range(1, SOL_NUM).parallel().forEach(i -> {
+      Solution solution = solutionsList.get(i);
+      evolve(solution.grid, best.grid, gridLastBest);
+      solution.getCost();
+    });
+    // Save best and update order.
+    lastBest = best;
+    solutionsList.sort(cost);
+  }
+
+  /**
+   * Perform crossover, and possibly mutation, on solution.
+   *
+   * @param grid solution to change.
+   * @param gridBest current best solution.
+   * @param gridLastBest previous best solution.
+   */
+  private static void evolve(int[][] grid, int[][] gridBest,
+                             int[][] gridLastBest) {
+    if (rng().nextDouble() < PROB_PMX_MULTI) {
+      pmxCross(grid, gridBest);
+    } else {
+      mpsxCross(grid, gridBest, gridLastBest);
+    }
+    repair(grid);
+    if (rng().nextDouble() < PROB_MUTATE) {
+      mutate(grid);
+    }
+  }
+
+  /**
+   * Move values back into their cell domains after crossover, by swapping
+   * every cell holding a value outside its domain with a cell of the same
+   * row where both values fit. Rows where no such swap exists are repaired
+   * by a chain of swaps instead.
+   *
+   * @param grid solution to change.
+   */
+  private static void repair(int[][] grid) {
+    for (int i = 0; i < DIM; i++) {
+      int[] row = grid[i];
+      for (int j = 0; j < DIM; j++) {
+        if (fits(i, j, row[j])) {
+          continue;
+        }
+        int k = 0;
+        while (k < DIM && (k == j || !fits(i, j, row[k])
+                || !fits(i, k, row[j]))) {
+          k++;
+        }
+        if (k < DIM) {
+          int temp = row[j];
+          row[j] = row[k];
+          row[k] = temp;
+          repairsAccepted.increment();
+        } else {
+          // Chain also repairs the rest of the row.
+          if (rematch(i, row)) {
+            repairsAccepted.increment();
+          } else {
+            repairsRejected.increment();
+          }
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Helper method that moves values of row into their cell domains by
+   * matching values to cells. Cells whose value fits keep it, and every
+   * other cell takes a value along an augmenting path, so values move in a
+   * chain of swaps. As the prefiltered domains admit the solution of the
+   * puzzle, a chain exists for every row.
+   *
+   * @param i row index.
+   * @param row row to change.
+   * @return whether every value of row now fits its cell.
+   */
+  private static boolean rematch(int i, int[] row) {
+    // Value matched to every cell, or 0, and cell matched to every value,
+    // or -1.
+    int[] valOf = new int[DIM];
+    int[] cellOf = new int[DIM + 1];
+    Arrays.fill(cellOf, -1);
+    for (int j = 0; j < DIM; j++) {
+      if (fits(i, j, row[j])) {
+        valOf[j] = row[j];
+        cellOf[row[j]] = j;
+      }
+    }
+    boolean matched = true;
+    boolean[] visited = new boolean[DIM + 1];
+    for (int j = 0; j < DIM; j++) {
+      if (valOf[j] == 0) {
+        Arrays.fill(visited, false);
+        matched &= augment(i, j, valOf, cellOf, visited);
+      }
+    }
+    // Cells left unmatched take the remaining values in order.
+    int val = 1;
+    for (int j = 0; j < DIM; j++) {
+      if (valOf[j] == 0) {
+        while (cellOf[val] != -1) {
+          val++;
+        }
+        valOf[j] = val;
+        cellOf[val] = j;
+      }
+    }
+    System.arraycopy(valOf, 0, row, 0, DIM);
+    return matched;
+  }
+
+  /**
+   * Helper method that finds augmenting path from cell, matching it to a
+   * value of its domain and moving cells on the path to other values.
+   *
+   * @param i row index.
+   * @param j column index of unmatched cell.
+   * @param valOf value matched to every cell, or {@code 0}.
+   * @param cellOf cell matched to every value, or {@code -1}.
+   * @param visited values already on path.
+   * @return whether cell was matched.
+   */
+  private static boolean augment(int i, int j, int[] valOf, int[] cellOf,
+                                 boolean[] visited) {
+    for (int val = 1; val <= DIM; val++) {
+      if (!fits(i, j, val) || visited[val]) {
+        continue;
+      }
+      visited[val] = true;
+      if (cellOf[val] == -1
+              || augment(i, cellOf[val], valOf, cellOf, visited)) {
+        valOf[j] = val;
+        cellOf[val] = j;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Determine whether value is in prefiltered domain of cell.
+   *
+   * @param row row index.
+   * @param col column index.
+   * @param val value.
+   * @return whether in domain.
+   */
+  private static boolean fits(int row, int col, int val) {
+    return (domainMasks[row * DIM + col] & (1 << val)) != 0;
+  }
+
+  /**
+   * Creates copy of grid.
+   *
+   * @param grid grid to copy.
+   * @return copy of grid.
+   */
+  private static int[][] copyOf(int[][] grid) {
+    int[][] copy = new int[DIM][DIM];
+    for (int i = 0; i < DIM; i++) {
+      System.arraycopy(grid[i], 0, copy[i], 0, DIM);
+    }
+    return copy;
+  }
+
   /**
    * Creates copy of solution at index {@code sol}.
    *
@@ -329,12 +763,7 @@ public class Solver {
    * @return copy of solution {@code sol}.
    */
   private static Solution copyOf(int sol) {
-    int[][] grid = new int[DIM][DIM];
-    int[][] solGrid = solutionsList.get(sol).grid;
-    for (int i = 0; i < DIM; i++) {
-      System.arraycopy(solGrid[i], 0, grid[i], 0, DIM);
-    }
-    return new Solution(grid);
+    return new Solution(copyOf(solutionsList.get(sol).grid));
   }
 
   /**
@@ -389,7 +818,8 @@ public class Solver {
   }
 
   /**
-   * Switch values of two cells in random number of random rows.
+   * Switch values of two cells in random number of random rows, choosing
+   * only cells where each value is in the domain of the other cell.
    *
    * @param grid solution to change.
    */
@@ -399,7 +829,7 @@ public class Solver {
     for (int i = 0; i < DIM; i++) {
       rows.add(i);
     }
-    Collections.shuffle(rows);
+    Collections.shuffle(rows, rng());
 
     // Choose random number.
     int num = randomNum(DIM) + 1;
@@ -416,13 +846,31 @@ public class Solver {
         }
       }
       if (cells.size() > 1) {
-        Collections.shuffle(cells);
-        int index1 = cells.remove(cells.size() - 1);
-        int index2 = cells.remove(cells.size() - 1);
-        // Swap values.
-        int temp = grid[i][index1];
-        grid[i][index1] = grid[i][index2];
-        grid[i][index2] = temp;
+        Collections.shuffle(cells, rng());
+        // Find first pair where both values fit.
+        int index1 = -1;
+        int index2 = -1;
+        for (int a = 0; a < cells.size() && index1 == -1; a++) {
+          for (int b = a + 1; b < cells.size(); b++) {
+            int col1 = cells.get(a);
+            int col2 = cells.get(b);
+            if (fits(i, col1, grid[i][col2])
+                    && fits(i, col2, grid[i][col1])) {
+              index1 = col1;
+              index2 = col2;
+              break;
+            }
+          }
+        }
+        if (index1 != -1) {
+          // Swap values.
+          int temp = grid[i][index1];
+          grid[i][index1] = grid[i][index2];
+          grid[i][index2] = temp;
+          swapsAccepted.increment();
+        } else {
+          swapsRejected.increment();
+        }
       }
       count++;
     }
@@ -439,13 +887,76 @@ public class Solver {
     for (int i = SOL_NUM - 1; i > 0; i--) {
       // Remove higher cost solutions from list.
       if (solutionsList.get(i).cost > minCost) {
-        if (Math.random() < PROB_A) {
+        if (rng().nextDouble() < PROB_A) {
           solutionsList.remove(i);
         }
       }
     }
   }
 
+  /**
+   * Remove solutions with same grid as better solution, so they are
+   * replaced by new solutions.
+   */
+  private static void removeDuplicates() {
+    generation++;
+    checked += solutionsList.size();
+    int size = solutionsList.size();
+    solutionsList.removeIf(solution -> !addHash(solution.hash));
+    duplicates += size - solutionsList.size();
+  }
+
+  /**
+   * Helper method that adds hash to hash set of current generation.
+   *
+   * @param hash grid hash.
+   * @return whether hash was not in set yet.
+   */
+  private static boolean addHash(long hash) {
+    int slot = (int) (hash ^ (hash >>> 32)) & (HASH_SIZE - 1);
+    while (stamps[slot] == generation) {
+      if (hashes[slot] == hash) {
+        return false;
+      }
+      slot = (slot + 1) & (HASH_SIZE - 1);
+    }
+    stamps[slot] = generation;
+    hashes[slot] = hash;
+    return true;
+  }
+
+  /**
+   * Get ratio of duplicate solutions replaced to solutions checked during
+   * last solve.
+   *
+   * @return duplicate ratio.
+   */
+  public static double duplicateRatio() {
+    return checked == 0 ? 0 : (double) duplicates / checked;
+  }
+
+  /**
+   * Get solving time of last solve, including time spent in runs it was
+   * resumed from.
+   *
+   * @return total solving time in seconds.
+   */
+  public static double totalTime() {
+    return totalTime / 1000.0;
+  }
+
+  /**
+   * Get numbers of mutation swaps and crossover repairs accepted and
+   * rejected during last solve.
+   *
+   * @return swaps accepted, swaps rejected, repairs accepted, and repairs
+   *         rejected.
+   */
+  public static long[] operatorCounts() {
+    return new long[] {swapsAccepted.sum(), swapsRejected.sum(),
+        repairsAccepted.sum(), repairsRejected.sum()};
+  }
+
   /**
    * Generate random integer in range from {@code 0} to {@code n - 1}.
    *
@@ -453,6 +964,16 @@ public class Solver {
    * @return random integer from {@code 0} to {@code n - 1}.
    */
   private static int randomNum(int max) {
-    return (int) (max * Math.random());
+    return rng().nextInt(max);
+  }
+
+  /**
+   * Get random number generator of current thread. Sequential solving uses
+   * a single generator whose state is kept in snapshots.
+   *
+   * @return random number generator.
+   */
+  private static Random rng() {
+    return parallel ? ThreadLocalRandom.current() : random;
   }
 }
@@ -1,18 +1,32 @@
 /**
  * The {@code Sudoku} class contains a single main method that supports
  * prefiltering, partially matched crossover, multiparental sorting crossover,
- * and the solving of Sudoku puzzles.
+ * the solving of Sudoku puzzles, the generation of rated puzzles, the
+ * counting of solutions, and conversion to and from packed binary files.
  */
 public class Sudoku {
 
   /**
    * Perform operation, specified by mode, using data from input file.
+   * Generation mode takes number of puzzles, number of clues, and optional
+   * seed instead of input file path. Counting mode takes optional limit
+   * after input file path. Conversion modes take input and output file
+   * paths, followed by {@code domains} when converting prefiltering output,
+   * or input file path with optional first record and record count.
+   * Mode 8 solves like mode 3, performing the operators of every generation
+   * in parallel. Modes 9 and 10 perform the crossovers of modes 0 and 1 for
+   * every job in input file, with jobs separated by blank lines. Mode 11
+   * solves like mode 3, resuming from and saving to snapshot file path
+   * given after input file path.
    *
    * @param args commandline arguments specifying mode and input file path.
    */
   public static void main(String[] args) {
     int mode = Integer.valueOf(args[0]);
-    int[][] input = SudokuIO.readInput(args[1], mode);
+    int[][] input = null;
+    if (mode <= 3 || mode == 5 || mode == 8 || mode == 11) {
+      input = SudokuIO.readInput(args[1], mode);
+    }
 
     switch (mode) {
       case 0:
@@ -28,12 +42,52 @@ public class Sudoku {
         SudokuIO.print(Prefilt.domainsList(input), mode);
         break;
       case 3:
-        int[][] solGrid = Solver.solve(input);
+      case 8:
+      case 11:
+        int[][] solGrid = Solver.solve(input, mode == 8,
+                mode == 11 ? args[2] : null);
         if (solGrid != null) {
-          SudokuIO.print(solGrid, mode);
+          SudokuIO.print(solGrid, 3);
         } else {
           System.out.println("MAX ITER EXCEEDED");
         }
+        // Mode 3 output stays as it was, statistics are for new modes.
+        if (mode != 3) {
+          System.out.println();
+          System.err.printf("DUPLICATE RATIO %.4f%n",
+                  Solver.duplicateRatio());
+          long[] counts = Solver.operatorCounts();
+          System.err.printf("MUTATION ACCEPTED %d REJECTED %d%n",
+                  counts[0], counts[1]);
+          System.err.printf("REPAIR ACCEPTED %d REJECTED %d%n",
+                  counts[2], counts[3]);
+        }
+        if (mode == 11) {
+          System.err.printf("TOTAL TIME %.1f s%n", Solver.totalTime());
+        }
+        break;
+      case 4:
+        long seed = args.length > 3 ? Long.valueOf(args[3]) : 0;
+        Generator.generate(Integer.valueOf(args[1]),
+                Integer.valueOf(args[2]), seed);
+        break;
+      case 5:
+        int limit = args.length > 2 ? Integer.valueOf(args[2]) : 2;
+        System.out.println(Counter.count(input, limit));
+        break;
+      case 6:
+        SudokuBin.fromText(args[1], args[2],
+                args.length > 3 && args[3].equals("domains"));
+        break;
+      case 7:
+        int first = args.length > 2 ? Integer.valueOf(args[2]) : 0;
+        int num = args.length > 3 ? Integer.valueOf(args[3])
+                : Integer.MAX_VALUE;
+        SudokuBin.toText(args[1], first, num);
+        break;
+      case 9:
+      case 10:
+        Batch.cross(args[1], mode - 9);
         break;
       default:
         System.out.println("INVALID MODE");
@@ -0,0 +1,365 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static java.lang.System.out;
+
+/**
+ * The {@code SudokuBin} class is a library that manages a packed binary
+ * format for Sudoku grids and cell domains. A file holds a 16 byte header
+ * followed by fixed size records: grids take 4 bits per cell (41 bytes) and
+ * domains take a 2 byte value mask per cell (162 bytes). As records have
+ * fixed size, the offset of record {@code i} is
+ * {@code HEADER + i * recordSize}, so any record can be read straight from a
+ * memory-mapped file.
+ */
+class SudokuBin {
+  // Row and column length.
+  private static final int DIM = 9;
+  // Number of cells.
+  private static final int CELLS = DIM * DIM;
+  // File signature, "SDKB".
+  private static final int MAGIC = 0x53444B42;
+  // Format version.
+  private static final short VERSION = 1;
+  // Header length in bytes.
+  private static final int HEADER = 16;
+  // Record kinds.
+  static final short GRIDS = 0;
+  static final short DOMAINS = 1;
+  // Maximum bytes per memory mapping.
+  private static final int SEGMENT = 1 << 30;
+  // Write buffer length in bytes.
+  private static final int BUFFER = 1 << 16;
+
+  /**
+   * The {@code Writer} class serves as streaming writer of records. Record
+   * count in the header is filled in when the writer is closed.
+   */
+  static class Writer implements Closeable {
+    FileChannel channel;
+    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+    short kind;
+    int count;
+
+    /**
+     * Constructor that takes output file path and record kind.
+     *
+     * @param path output file path.
+     * @param kind record kind.
+     * @throws IOException if file cannot be opened.
+     */
+    Writer(String path, short kind) throws IOException {
+      this.kind = kind;
+      channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      buffer.position(HEADER);
+    }
+
+    /**
+     * Append record.
+     *
+     * @param record cell values for grids, or value masks for domains.
+     * @throws IOException if record cannot be written.
+     */
+    void write(int[] record) throws IOException {
+      if (buffer.remaining() < recordSize(kind)) {
+        flush();
+      }
+      encode(record, kind, buffer);
+      count++;
+    }
+
+    /**
+     * Write buffered records to file.
+     *
+     * @throws IOException if records cannot be written.
+     */
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    /**
+     * Write remaining records and header, then close file.
+     *
+     * @throws IOException if file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+      flush();
+      buffer.putInt(MAGIC).putShort(VERSION).putShort(kind)
+              .putInt(recordSize(kind)).putInt(count).flip();
+      channel.write(buffer, 0);
+      channel.close();
+    }
+  }
+
+  /**
+   * The {@code Reader} class serves as random-access reader of records from
+   * a memory-mapped file. Files larger than one mapping are mapped in
+   * segments holding whole records.
+   */
+  static class Reader implements Closeable {
+    MappedByteBuffer[] segments;
+    short kind;
+    int recordSize;
+    int count;
+    int perSegment;
+
+    /**
+     * Constructor that takes input file path.
+     *
+     * @param path input file path.
+     * @throws IOException if file cannot be mapped, has no valid header, or
+     *                     is shorter than header says.
+     */
+    Reader(String path) throws IOException {
+      try (FileChannel channel = FileChannel.open(Paths.get(path))) {
+        if (channel.size() < HEADER) {
+          throw new IOException("Not a Sudoku binary file: " + path);
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                HEADER);
+        if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+          throw new IOException("Not a Sudoku binary file: " + path);
+        }
+        kind = header.getShort();
+        recordSize = header.getInt();
+        count = header.getInt();
+        if ((kind != GRIDS && kind != DOMAINS)
+                || recordSize != recordSize(kind) || count < 0) {
+          throw new IOException("Invalid header in Sudoku binary file: "
+                  + path);
+        }
+        if (channel.size() < HEADER + (long) count * recordSize) {
+          throw new IOException("Truncated Sudoku binary file: " + path
+                  + " holds fewer than " + count + " records");
+        }
+        perSegment = SEGMENT / recordSize;
+        segments = new MappedByteBuffer[(count + perSegment - 1)
+                / perSegment];
+        for (int i = 0; i < segments.length; i++) {
+          long start = HEADER + (long) i * perSegment * recordSize;
+          long length = (long) Math.min(perSegment, count - i * perSegment)
+                  * recordSize;
+          segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                  length);
+        }
+      }
+    }
+
+    /**
+     * Read record at index.
+     *
+     * @param index record index.
+     * @return cell values for grids, or value masks for domains.
+     * @throws IndexOutOfBoundsException if there is no record at index.
+     */
+    int[] read(int index) {
+      if (index < 0 || index >= count) {
+        throw new IndexOutOfBoundsException("Record " + index + " of "
+                + count);
+      }
+      return decode(segments[index / perSegment],
+              (index % perSegment) * recordSize, kind);
+    }
+
+    /**
+     * Release mappings. Mapped memory is unmapped once garbage collected.
+     */
+    @Override
+    public void close() {
+      segments = null;
+    }
+  }
+
+  /**
+   * Get record length in bytes.
+   *
+   * @param kind record kind.
+   * @return record length.
+   */
+  private static int recordSize(short kind) {
+    return kind == GRIDS ? (CELLS + 1) / 2 : CELLS * 2;
+  }
+
+  /**
+   * Helper method that packs record into buffer.
+   *
+   * @param record cell values for grids, or value masks for domains.
+   * @param kind record kind.
+   * @param buffer buffer to write to.
+   */
+  private static void encode(int[] record, short kind, ByteBuffer buffer) {
+    if (kind == GRIDS) {
+      // Two cells per byte, first cell in high bits.
+      for (int i = 0; i < CELLS; i += 2) {
+        int low = i + 1 < CELLS ? record[i + 1] : 0;
+        buffer.put((byte) (record[i] << 4 | low));
+      }
+    } else {
+      for (int i = 0; i < CELLS; i++) {
+        buffer.putShort((short) record[i]);
+      }
+    }
+  }
+
+  /**
+   * Helper method that unpacks record from buffer, without changing buffer
+   * position.
+   *
+   * @param buffer buffer to read from.
+   * @param pos record position in buffer.
+   * @param kind record kind.
+   * @return cell values for grids, or value masks for domains.
+   */
+  private static int[] decode(ByteBuffer buffer, int pos, short kind) {
+    int[] record = new int[CELLS];
+    if (kind == GRIDS) {
+      for (int i = 0; i < CELLS; i += 2) {
+        int packed = buffer.get(pos + i / 2);
+        record[i] = (packed >> 4) & 0xF;
+        if (i + 1 < CELLS) {
+          record[i + 1] = packed & 0xF;
+        }
+      }
+    } else {
+      for (int i = 0; i < CELLS; i++) {
+        record[i] = buffer.getShort(pos + i * 2);
+      }
+    }
+    return record;
+  }
+
+  /**
+   * Convert text file to binary file. Grids are read one puzzle per line,
+   * taking the first token of every line, or as 9 lines of 9 cells in the
+   * syntax of {@code SudokuIO.readInput}. Domains are read as 81 lines per
+   * record, as printed by prefiltering mode. Bad lines and incomplete
+   * records stop the conversion, and no output file is left.
+   *
+   * @param in input text file path.
+   * @param outPath output binary file path.
+   * @param domains whether input holds domains instead of grids.
+   */
+  static void fromText(String in, String outPath, boolean domains) {
+    boolean converted = false;
+    try (BufferedReader reader = Files.newBufferedReader(Paths.get(in));
+         Writer writer = new Writer(outPath, domains ? DOMAINS : GRIDS)) {
+      int[] record = new int[CELLS];
+      int[] row = new int[CELLS];
+      // Lines per record, set by first line for grids.
+      int linesPerRecord = domains ? CELLS : 0;
+      int lines = 0;
+      int number = 0;
+      for (String line = reader.readLine(); line != null;
+           line = reader.readLine()) {
+        number++;
+        line = line.trim();
+        if (line.isEmpty()) {
+          continue;
+        }
+        if (domains) {
+          record[lines] = readDomain(line, in, number);
+        } else {
+          String token = line.split("\\s+")[0];
+          if (linesPerRecord == 0) {
+            linesPerRecord = SudokuIO.cellCount(token) == CELLS ? 1 : DIM;
+          }
+          // One puzzle per line ignores tokens after puzzle.
+          String cells = linesPerRecord == 1 ? token : line;
+          int width = CELLS / linesPerRecord;
+          if (SudokuIO.cellCount(cells) != width) {
+            throw new IOException(in + ":" + number + ": expected " + width
+                    + " cells");
+          }
+          SudokuIO.readRow(cells, row, width);
+          System.arraycopy(row, 0, record, lines * width, width);
+        }
+        if (++lines == linesPerRecord) {
+          writer.write(record);
+          lines = 0;
+        }
+      }
+      if (lines != 0) {
+        throw new IOException(in + ": incomplete record at end of file");
+      }
+      converted = true;
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    if (!converted) {
+      try {
+        Files.deleteIfExists(Paths.get(outPath));
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Helper method that reads domain line of space separated values.
+   *
+   * @param line line to read.
+   * @param in input text file path, for error messages.
+   * @param number line number, for error messages.
+   * @return bit mask of values.
+   * @throws IOException if line holds anything but values 1 to 9.
+   */
+  private static int readDomain(String line, String in, int number)
+          throws IOException {
+    int mask = 0;
+    for (String val : line.split("\\s+")) {
+      if (!val.matches("[1-9]")) {
+        throw new IOException(in + ":" + number + ": bad domain value \""
+                + val + "\"");
+      }
+      mask |= 1 << Integer.parseInt(val);
+    }
+    return mask;
+  }
+
+  /**
+   * Print records of binary file as text, grids one puzzle per line and
+   * domains as printed by prefiltering mode. Records past the end of the
+   * file are not printed.
+   *
+   * @param in input binary file path.
+   * @param first index of first record.
+   * @param num maximum number of records.
+   */
+  static void toText(String in, int first, int num) {
+    try (Reader reader = new Reader(in)) {
+      if (first < 0 || num < 0) {
+        throw new IOException("Invalid record range: first " + first
+                + ", number " + num);
+      }
+      int last = (int) Math.min((long) first + num, reader.count);
+      for (int i = first; i < last; i++) {
+        int[] record = reader.read(i);
+        if (reader.kind == GRIDS) {
+          out.println(SudokuIO.formatLine(Search.toGrid(record)));
+        } else {
+          int[][] domainsList = new int[CELLS][];
+          for (int j = 0; j < CELLS; j++) {
+            domainsList[j] = Search.values(record[j]);
+          }
+          SudokuIO.print(domainsList, 2);
+          out.println();
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
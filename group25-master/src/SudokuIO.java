@@ -14,6 +14,7 @@ class SudokuIO {
 
   /**
    * Read input data from file into a dynamically sized 2D {@code int} array.
+   * Puzzles may also be given on a single line of 81 cells.
    *
    * @param path input file path.
    * @param mode determines row and column configuration to use for array.
@@ -41,6 +42,18 @@ class SudokuIO {
     // Read input lines.
     if (reader != null) {
       for (int i = 0; reader.hasNextLine(); i++) {
+        String line = reader.nextLine();
+        // Accept one puzzle per line, as printed by generation mode,
+        // ignoring tokens after puzzle.
+        String token = line.trim().split("\\s+")[0];
+        if (i == 0 && mode > 1 && cellCount(token) == DIM * DIM) {
+          int[] cells = new int[DIM * DIM];
+          readRow(token, cells, cells.length);
+          for (int j = 0; j < DIM; j++) {
+            input[j] = Arrays.copyOfRange(cells, j * DIM, (j + 1) * DIM);
+          }
+          break;
+        }
         // Allocate column memory.
         if (i == 0 && mode == 0) {
           input[i] = new int[2];
@@ -52,23 +65,32 @@ class SudokuIO {
           input[i] = new int[DIM];
         }
         // Convert string input to int array.
-        int auxIndex = 0;
-        int tempIndex = 0;
-        int[] temp = input[i];
-        String[] aux = reader.nextLine().split("");
-        while (tempIndex != temp.length) {
-          if (aux[auxIndex].matches("[1-9]")) {
-            temp[tempIndex++] = Integer.parseInt(aux[auxIndex]);
-          } else if (aux[auxIndex].equals(".")) {
-            temp[tempIndex++] = 0;
-          }
-          auxIndex++;
-        }
+        readRow(line, input[i], input[i].length);
       }
     }
     return input;
   }
 
+  /**
+   * Convert line to {@code int} array, reading digits 1 to 9 as values and
+   * {@code .} as empty cells, and skipping any other characters.
+   *
+   * @param line line to convert.
+   * @param row array to fill.
+   * @param len number of values to read.
+   */
+  static void readRow(String line, int[] row, int len) {
+    int rowIndex = 0;
+    for (int i = 0; i < line.length() && rowIndex != len; i++) {
+      char c = line.charAt(i);
+      if (c >= '1' && c <= '9') {
+        row[rowIndex++] = c - '0';
+      } else if (c == '.') {
+        row[rowIndex++] = 0;
+      }
+    }
+  }
+
   /**
    * Print {@code int} array on single line.
    *
@@ -100,4 +122,37 @@ class SudokuIO {
       }
     }
   }
+
+  /**
+   * Format Sudoku grid on single line, with {@code .} for empty cells.
+   *
+   * @param grid Sudoku representation.
+   * @return line of 81 cells.
+   */
+  static String formatLine(int[][] grid) {
+    StringBuilder line = new StringBuilder(DIM * DIM);
+    for (int[] row : grid) {
+      for (int val : row) {
+        line.append(val == 0 ? '.' : (char) ('0' + val));
+      }
+    }
+    return line.toString();
+  }
+
+  /**
+   * Count cells in line, counted the same way as {@code readRow} reads them.
+   *
+   * @param line line to count cells of.
+   * @return number of digits 1 to 9 and {@code .} characters.
+   */
+  static int cellCount(String line) {
+    int count = 0;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if ((c >= '1' && c <= '9') || c == '.') {
+        count++;
+      }
+    }
+    return count;
+  }
 }